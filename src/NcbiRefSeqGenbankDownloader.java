@@ -1,11 +1,25 @@
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.IOException;
 import java.net.URI;
@@ -16,7 +30,13 @@ import java.net.http.HttpResponse;
 import java.nio.file.*;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -30,15 +50,21 @@ public class NcbiRefSeqGenbankDownloader {
     private final String email;
     private final String apiKey; // may be null
     private final HttpClient http;
+    private final ByteBudget budget; // caps response bytes buffered across concurrent EFetch transfers
 
     // Timestamp of the last HTTP request, used to pace ALL E-utilities calls (see throttle()).
     private long lastRequestNanos = 0L;
 
     public NcbiRefSeqGenbankDownloader(String tool, String email, String apiKey) {
+        this(tool, email, apiKey, 8L << 20);
+    }
+
+    public NcbiRefSeqGenbankDownloader(String tool, String email, String apiKey, long maxInflightBytes) {
         this.tool = Objects.requireNonNull(tool);
         this.email = Objects.requireNonNull(email);
         this.apiKey = apiKey;
         this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(20)).build();
+        this.budget = new ByteBudget(maxInflightBytes);
     }
 
     // Reads a simple list file. Supports: comments (#...), blank lines, and separators (, ; whitespace).
@@ -70,6 +96,9 @@ public class NcbiRefSeqGenbankDownloader {
     // An accession resolved from a raw token, plus an optional sub-range parsed from a nuccore URL.
     record AccRef(String accession, Integer from, Integer to) {}
 
+    // One EFetch download handed from the resolve stage to the fetch stage.
+    record FetchJob(String accession, Path outFile, Integer seqStart, Integer seqStop) {}
+
     static final class Config {
         Path inputFile;
         InputMode inputMode = InputMode.AUTO;
@@ -78,6 +107,13 @@ public class NcbiRefSeqGenbankDownloader {
         Integer ngFrom = null;
         Integer ngTo = null;
         Path outDir = Paths.get("out");
+        Path geneDb = null; // directory with NCBI gene_info / gene2refseq / gene_RefSeqGene (gene mode resolves offline when set)
+
+        int workers = 1;         // concurrent EFetch downloads (all still share one NCBI rate budget)
+        int queueSize = 16;      // resolved jobs waiting for a fetch worker before the resolver stalls
+        int maxInflightMb = 8;   // response bytes buffered in memory across all in-flight downloads
+
+        Path jfrFile = null;     // when set, record the JFR events below (plus the JDK "default" set) to this file
 
         String tool = System.getenv().getOrDefault("NCBI_TOOL", "my_java_ncbi_tool");
         String email = System.getenv().getOrDefault("NCBI_EMAIL", PLACEHOLDER_EMAIL);
@@ -132,12 +168,26 @@ public class NcbiRefSeqGenbankDownloader {
                 ? EnumSet.of(RecordType.NM, RecordType.NG)
                 : cfg.types;
 
-        var dl = new NcbiRefSeqGenbankDownloader(cfg.tool, cfg.email, cfg.apiKey);
+        Recording recording = (cfg.jfrFile != null) ? startRecording(cfg.jfrFile) : null;
+        var dl = new NcbiRefSeqGenbankDownloader(cfg.tool, cfg.email, cfg.apiKey, (long) cfg.maxInflightMb << 20);
         Files.createDirectories(cfg.outDir);
 
-        int failures = (mode == InputMode.ACCESSIONS)
-                ? runAccessionMode(dl, items, cfg, types)
-                : runGeneMode(dl, items, cfg, types);
+        // resolve (this thread) -> bounded job queue -> fetch workers streaming to disk under the byte budget
+        var pipeline = new DownloadPipeline(dl, cfg.workers, cfg.queueSize);
+        int failures;
+        try {
+            failures = (mode == InputMode.ACCESSIONS)
+                    ? runAccessionMode(pipeline, items, cfg, types)
+                    : runGeneMode(dl, pipeline, items, cfg, types);
+            failures += pipeline.finish();
+        } finally {
+            pipeline.abort(); // no-op after finish(); stops idle workers if resolution failed
+            if (recording != null) {
+                recording.stop(); // writes the destination file
+                recording.close();
+                System.out.println("JFR recording written to " + cfg.jfrFile);
+            }
+        }
 
         if (failures > 0) {
             System.err.println("Done with " + failures + " failure(s).");
@@ -147,7 +197,19 @@ public class NcbiRefSeqGenbankDownloader {
         }
     }
 
-    private static int runGeneMode(NcbiRefSeqGenbankDownloader dl, List<String> genes, Config cfg, EnumSet<RecordType> types) throws InterruptedException {
+    private static Recording startRecording(Path file) throws IOException, java.text.ParseException {
+        Recording r = new Recording(Configuration.getConfiguration("default"));
+        r.setName("genbanktools");
+        for (Class<? extends Event> ev : List.of(HttpRequestEvent.class, ThrottleEvent.class, EFetchEvent.class, XmlParseEvent.class)) {
+            r.enable(ev).withoutThreshold();
+        }
+        r.setDestination(file);
+        r.setDumpOnExit(true); // a run killed by SIGINT/SIGTERM or a scheduler timeout still leaves its recording
+        r.start();
+        return r;
+    }
+
+    private static int runGeneMode(NcbiRefSeqGenbankDownloader dl, DownloadPipeline pipeline, List<String> genes, Config cfg, EnumSet<RecordType> types) throws InterruptedException {
         System.out.println("Input mode: GENES (symbols)");
         System.out.println("TaxID: " + cfg.taxId);
         System.out.println("Download types: " + types);
@@ -155,6 +217,18 @@ public class NcbiRefSeqGenbankDownloader {
             System.out.println("NG_ range: " + cfg.ngFrom + ".." + cfg.ngTo + " (1-based, inclusive)");
         }
 
+        // Offline resolution: GeneID and linked NM_/NG_ come from the local index, so only EFetch hits the network.
+        GeneIndex index = null;
+        if (cfg.geneDb != null) {
+            try {
+                index = GeneIndex.open(cfg.geneDb, cfg.taxId, types.contains(RecordType.NG));
+            } catch (IOException e) {
+                System.err.println("FAILED to open gene database " + cfg.geneDb + ": " + e.getMessage());
+                return genes.size();
+            }
+            System.out.println("Gene database: " + cfg.geneDb + " (" + index.size() + " genes, offline lookup)");
+        }
+
         int failures = 0;
         for (String rawSymbol : genes) {
             String geneSymbol = rawSymbol.toUpperCase(Locale.ROOT);
@@ -163,7 +237,9 @@ public class NcbiRefSeqGenbankDownloader {
                 Path geneOut = cfg.outDir.resolve(geneSymbol);
                 Files.createDirectories(geneOut);
 
-                Optional<String> geneId = dl.findGeneId(geneSymbol, cfg.taxId);
+                Optional<String> geneId = (index != null)
+                        ? index.findGeneId(geneSymbol)
+                        : dl.findGeneId(geneSymbol, cfg.taxId);
                 if (geneId.isEmpty()) {
                     System.out.println("  GeneID not found");
                     continue;
@@ -171,17 +247,25 @@ public class NcbiRefSeqGenbankDownloader {
                 System.out.println("  GeneID=" + geneId.get());
 
                 if (types.contains(RecordType.NM)) {
-                    List<String> rnaAccs = dl.elinkAccessionVersions(geneId.get(), "gene_nuccore_refseqrna");
+                    List<String> rnaAccs = (index != null)
+                            ? index.accessionVersions(geneId.get())
+                            : dl.elinkAccessionVersions(geneId.get(), "gene_nuccore_refseqrna");
                     List<String> nmAccs = rnaAccs.stream().map(String::trim).filter(a -> a.startsWith("NM_")).distinct().toList();
                     System.out.println("  NM_=" + nmAccs.size());
-                    failures += dl.fetchAll(nmAccs, acc -> geneOut.resolve(acc + ".gb"), acc -> null, acc -> null);
+                    for (String acc : nmAccs) {
+                        pipeline.submit(new FetchJob(acc, geneOut.resolve(acc + ".gb"), null, null));
+                    }
                 }
 
                 if (types.contains(RecordType.NG)) {
-                    List<String> geneAccs = dl.elinkAccessionVersions(geneId.get(), "gene_nuccore_refseqgene");
+                    List<String> geneAccs = (index != null)
+                            ? index.accessionVersions(geneId.get())
+                            : dl.elinkAccessionVersions(geneId.get(), "gene_nuccore_refseqgene");
                     List<String> ngAccs = geneAccs.stream().map(String::trim).filter(a -> a.startsWith("NG_")).distinct().toList();
                     System.out.println("  NG_=" + ngAccs.size());
-                    failures += dl.fetchAll(ngAccs, acc -> geneOut.resolve(acc + ".gb"), acc -> cfg.ngFrom, acc -> cfg.ngTo);
+                    for (String acc : ngAccs) {
+                        pipeline.submit(new FetchJob(acc, geneOut.resolve(acc + ".gb"), cfg.ngFrom, cfg.ngTo));
+                    }
                 }
             } catch (InterruptedException ie) {
                 Thread.currentThread().interrupt();
@@ -194,7 +278,7 @@ public class NcbiRefSeqGenbankDownloader {
         return failures;
     }
 
-    private static int runAccessionMode(NcbiRefSeqGenbankDownloader dl, List<String> rawItems, Config cfg, EnumSet<RecordType> types) throws IOException, InterruptedException {
+    private static int runAccessionMode(DownloadPipeline pipeline, List<String> rawItems, Config cfg, EnumSet<RecordType> types) throws IOException, InterruptedException {
         System.out.println("Input mode: ACCESSIONS (ACC.V or NCBI URLs)");
         System.out.println("Download types: " + types);
         if (types.contains(RecordType.NG) && cfg.ngFrom != null && cfg.ngTo != null) {
@@ -222,7 +306,6 @@ public class NcbiRefSeqGenbankDownloader {
 
         System.out.println("Accessions to download: " + refs.size());
 
-        int failures = 0;
         for (AccRef ref : refs.values()) {
             String acc = ref.accession();
             // Range precedence: per-URL from/to, else the global --ng-from/--ng-to (NG_ only).
@@ -232,38 +315,145 @@ public class NcbiRefSeqGenbankDownloader {
                 start = cfg.ngFrom;
                 stop = cfg.ngTo;
             }
-            Path outFile = out.resolve(acc + ".gb");
-            try {
-                dl.efetchGenbank(acc, outFile, start, stop);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw ie;
-            } catch (Exception e) {
-                failures++;
-                System.err.println("  FAILED " + acc + ": " + e.getMessage());
-            }
+            pipeline.submit(new FetchJob(acc, out.resolve(acc + ".gb"), start, stop));
         }
-        return failures;
+        return 0; // download failures are counted by the pipeline
     }
 
-    // Functional interface that may be needed if a range mapper throws; kept simple with java.util.function below.
-    private interface AccMapper<T> { T apply(String acc); }
+    // Fetch stage: a fixed pool of workers draining a bounded job queue. submit() blocks while the queue is
+    // full, so the resolver stalls instead of piling up jobs when downloads (or the disk) fall behind.
+    // Per-item failures are isolated and counted; finish() drains the queue and returns the failure count.
+    // Jobs are de-duplicated by output file, so two workers never write the same .part file.
+    // An Error in a worker (e.g. OutOfMemoryError under a small -Xmx) stops the pipeline: submit() and finish()
+    // stop waiting on the dead pool, and every job that was not downloaded is counted as a failure.
+    static final class DownloadPipeline {
+        private static final FetchJob END = new FetchJob(null, null, null, null);
+
+        private final NcbiRefSeqGenbankDownloader dl;
+        private final BlockingQueue<FetchJob> queue;
+        private final List<Thread> workers = new ArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final Set<Path> submitted = new HashSet<>(); // resolver thread only
+        private volatile Throwable fatal = null; // first Error that stopped a worker
+
+        DownloadPipeline(NcbiRefSeqGenbankDownloader dl, int workers, int queueCapacity) {
+            this.dl = dl;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            for (int i = 0; i < workers; i++) {
+                Thread t = new Thread(this::work, "efetch-" + (i + 1));
+                t.setDaemon(true);
+                this.workers.add(t);
+                t.start();
+            }
+        }
+
+        // Tokens differing only in case (tp53, TP53) resolve to the same output file; fetch it once.
+        void submit(FetchJob job) throws InterruptedException {
+            if (!submitted.add(job.outFile().toAbsolutePath().normalize())) return;
+            while (!queue.offer(job, 100, TimeUnit.MILLISECONDS)) {
+                if (isBroken()) {
+                    skipped(job);
+                    return;
+                }
+            }
+            if (isBroken() && queue.remove(job)) {
+                skipped(job); // enqueued just as the last worker died
+            }
+        }
 
-    // Download a list of accessions, isolating per-item failures. Returns the number of failures.
-    private int fetchAll(List<String> accs, AccMapper<Path> outFile, AccMapper<Integer> from, AccMapper<Integer> to) throws InterruptedException {
-        int failures = 0;
-        for (String acc : accs) {
-            try {
-                efetchGenbank(acc, outFile.apply(acc), from.apply(acc), to.apply(acc));
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw ie;
-            } catch (Exception e) {
-                failures++;
-                System.err.println("  FAILED " + acc + ": " + e.getMessage());
+        int finish() throws InterruptedException {
+            for (int i = 0; i < workers.size(); i++) {
+                while (!queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    if (isBroken()) break;
+                }
+            }
+            for (Thread t : workers) {
+                t.join();
+            }
+            // Anything still queued was never taken by a worker.
+            for (FetchJob job; (job = queue.poll()) != null; ) {
+                if (job != END) skipped(job);
+            }
+            if (fatal != null) {
+                System.err.println("Download pipeline stopped: " + fatal);
+                return Math.max(failures.get(), 1);
+            }
+            return failures.get();
+        }
+
+        private boolean isBroken() {
+            return fatal != null || workers.stream().noneMatch(Thread::isAlive);
+        }
+
+        private void skipped(FetchJob job) {
+            failures.incrementAndGet();
+            System.err.println("  FAILED " + job.accession() + ": not downloaded (download pipeline stopped)");
+        }
+
+        void abort() {
+            workers.forEach(Thread::interrupt);
+        }
+
+        private void work() {
+            while (true) {
+                FetchJob job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (job == END) return;
+                if (fatal != null) {
+                    skipped(job);
+                    return;
+                }
+                try {
+                    dl.efetchGenbank(job.accession(), job.outFile(), job.seqStart(), job.seqStop());
+                } catch (InterruptedException ie) {
+                    return;
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    System.err.println("  FAILED " + job.accession() + ": " + e.getMessage());
+                } catch (Throwable t) {
+                    // An Error leaves this worker (and likely the JVM) in an unknown state: stop the pipeline.
+                    if (fatal == null) fatal = t;
+                    failures.incrementAndGet();
+                    System.err.println("  FAILED " + job.accession() + ": " + t);
+                    return;
+                }
             }
         }
-        return failures;
+    }
+
+    // Download memory budget: a transfer must reserve its copy buffer before it opens its connection, and
+    // blocks while other transfers hold the budget. Bytes are never buffered beyond one chunk per transfer.
+    static final class ByteBudget {
+        private static final int MAX_CHUNK = 256 * 1024;
+
+        private final Semaphore permits; // 1 permit = 1 KiB
+        private final int chunkBytes;
+
+        ByteBudget(long maxBytes) {
+            long kib = Math.max(1L, Math.min(maxBytes >> 10, Integer.MAX_VALUE));
+            this.permits = new Semaphore((int) kib, true);
+            this.chunkBytes = (int) Math.min(MAX_CHUNK, kib << 10);
+        }
+
+        int chunkBytes() {
+            return chunkBytes;
+        }
+
+        void acquire() throws InterruptedException {
+            permits.acquire(chunkBytes >> 10);
+        }
+
+        void acquireUninterruptibly() {
+            permits.acquireUninterruptibly(chunkBytes >> 10);
+        }
+
+        void release() {
+            permits.release(chunkBytes >> 10);
+        }
     }
 
     private static boolean looksLikeAccession(List<String> items) {
@@ -395,6 +585,21 @@ public class NcbiRefSeqGenbankDownloader {
                 case "--api-key":
                     c.apiKey = requireValue(args, ++i, a);
                     break;
+                case "--gene-db":
+                    c.geneDb = Paths.get(requireValue(args, ++i, a));
+                    break;
+                case "--workers":
+                    c.workers = parseIntArg(a, requireValue(args, ++i, a));
+                    break;
+                case "--queue":
+                    c.queueSize = parseIntArg(a, requireValue(args, ++i, a));
+                    break;
+                case "--max-inflight-mb":
+                    c.maxInflightMb = parseIntArg(a, requireValue(args, ++i, a));
+                    break;
+                case "--jfr":
+                    c.jfrFile = Paths.get(requireValue(args, ++i, a));
+                    break;
                 default:
                     // Backward-compatible positional form: file [taxid [ng-from [ng-to]]]
                     if (a != null && !a.startsWith("-")) {
@@ -422,6 +627,12 @@ public class NcbiRefSeqGenbankDownloader {
         if (c.ngFrom != null && c.ngTo != null && c.ngFrom > c.ngTo) {
             throw new IllegalArgumentException("--ng-from (" + c.ngFrom + ") must be <= --ng-to (" + c.ngTo + ").");
         }
+        if (c.workers < 1 || c.queueSize < 1 || c.maxInflightMb < 1) {
+            throw new IllegalArgumentException("--workers, --queue and --max-inflight-mb must be >= 1.");
+        }
+        if (c.maxInflightMb > 2047) {
+            throw new IllegalArgumentException("--max-inflight-mb must be <= 2047 (got " + c.maxInflightMb + ").");
+        }
         return c;
     }
 
@@ -465,7 +676,8 @@ public class NcbiRefSeqGenbankDownloader {
         System.out.println("NCBI RefSeq GenBank Downloader (Java)\n");
         System.out.println("Usage:");
         System.out.println("  java -jar NcbiRefSeqGenbankDownloader.jar --in <file> [--input auto|genes|acc] [--types NM,NG]");
-        System.out.println("       [--taxid 9606] [--ng-from N --ng-to M] [--out outdir]");
+        System.out.println("       [--taxid 9606] [--ng-from N --ng-to M] [--out outdir] [--gene-db dir]");
+        System.out.println("       [--workers N] [--queue N] [--max-inflight-mb N] [--jfr file.jfr]");
         System.out.println("       [--tool NAME] [--email you@domain] [--api-key KEY]\n");
         System.out.println("Options:");
         System.out.println("  -i, --in <file>        Input file (required): one gene symbol or accession/URL per line");
@@ -475,6 +687,13 @@ public class NcbiRefSeqGenbankDownloader {
         System.out.println("      --ng-from <N>      Sub-range start (1-based) for NG_ records");
         System.out.println("      --ng-to <M>        Sub-range end   (1-based) for NG_ records");
         System.out.println("  -o, --out <dir>        Output directory (default: out)");
+        System.out.println("      --gene-db <dir>    Resolve gene symbols offline from NCBI gene_info, gene2refseq and");
+        System.out.println("                         gene_RefSeqGene (or LRG_RefSeqGene), plain or .gz, in <dir>");
+        System.out.println("                         (indexed per TaxID on first use; only EFetch goes to the network)");
+        System.out.println("      --workers <N>      Concurrent EFetch downloads (default: 1; NCBI rate limit still applies)");
+        System.out.println("      --queue <N>        Resolved downloads queued ahead of the workers (default: 16)");
+        System.out.println("      --max-inflight-mb <N>  Memory budget for download buffers across workers (default: 8)");
+        System.out.println("      --jfr <file>       Write a Java Flight Recorder recording with request/write timing events");
         System.out.println("      --tool <name>      Tool name sent to NCBI (default: env NCBI_TOOL or my_java_ncbi_tool)");
         System.out.println("      --email <addr>     Contact email sent to NCBI (default: env NCBI_EMAIL)");
         System.out.println("      --api-key <key>    NCBI API key for higher throughput (default: env NCBI_API_KEY)");
@@ -486,6 +705,8 @@ public class NcbiRefSeqGenbankDownloader {
         System.out.println("  java -jar NcbiRefSeqGenbankDownloader.jar --in genes.txt --input genes --taxid 9606 --types NG\n");
         System.out.println("  # Accessions file (NG_*/NM_* or NCBI nuccore URLs), download only NG_ with a range");
         System.out.println("  java -jar NcbiRefSeqGenbankDownloader.jar --in acc.txt --input acc --types NG --ng-from 13732 --ng-to 58896\n");
+        System.out.println("  # Gene symbols resolved from a local NCBI gene_info/gene2refseq/gene_RefSeqGene snapshot");
+        System.out.println("  java -jar NcbiRefSeqGenbankDownloader.jar --in genes.txt --input genes --gene-db ncbi-gene\n");
         System.out.println("Input file format:");
         System.out.println("  - one gene symbol or accession per line");
         System.out.println("  - supports comments starting with #");
@@ -525,6 +746,210 @@ public class NcbiRefSeqGenbankDownloader {
         return xpathText(doc, "//LinkSetDb/Link/Id/text()");
     }
 
+    // ---------- Steps 1+2 offline: local gene_info / gene2refseq / gene_RefSeqGene index (--gene-db) ----------
+
+    // Symbol/synonym -> GeneID and GeneID -> NM_/NG_ accession.version for ONE TaxID, built from NCBI's bulk
+    // gene_info, gene2refseq and gene_RefSeqGene (or LRG_RefSeqGene) files (plain or .gz). The multi-GB sources
+    // are streamed line by line and only rows for the requested TaxID are kept, so import memory is bounded by that organism's gene count. The result is
+    // written once as a small TSV (gene_index_<taxid>.tsv) next to the sources and rebuilt when they are newer.
+    static final class GeneIndex {
+        private static final String HEADER = "#gene_index v2 taxid=";
+
+        // Upper-cased keys. Official symbols take precedence over synonyms (which may be shared by several genes).
+        private final Map<String, String> symbols = new HashMap<>();
+        private final Map<String, String> synonyms = new HashMap<>();
+        private final Map<String, List<String>> accessions = new HashMap<>();
+
+        // The RefSeqGene mapping (human only) is required only when NG_ records are wanted; without it the index
+        // is built with NM_ rows alone and marked so, and is rebuilt once NG_ is requested or the file appears.
+        static GeneIndex open(Path dir, String taxId, boolean needRefSeqGene) throws IOException {
+            Path index = dir.resolve("gene_index_" + taxId + ".tsv");
+            Path geneInfo = findSource(dir, "gene_info");
+            Path gene2refseq = findSource(dir, "gene2refseq");
+            Path refSeqGene = findSource(dir, "gene_RefSeqGene");
+            if (refSeqGene == null) refSeqGene = findSource(dir, "LRG_RefSeqGene");
+
+            boolean stale = !Files.isRegularFile(index)
+                    || (geneInfo != null && isNewer(geneInfo, index))
+                    || (gene2refseq != null && isNewer(gene2refseq, index))
+                    || (refSeqGene != null && isNewer(refSeqGene, index));
+            if (!stale) {
+                try (BufferedReader r = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+                    String header = r.readLine();
+                    if (header(taxId, true).equals(header)) {
+                        stale = false;
+                    } else if (header(taxId, false).equals(header)) {
+                        stale = needRefSeqGene || refSeqGene != null; // built without NG_ rows, which are now wanted/available
+                    } else {
+                        stale = true; // older index format
+                    }
+                }
+            }
+            if (stale) {
+                if (geneInfo == null || gene2refseq == null) {
+                    throw new IOException("no index for TaxID " + taxId + " and gene_info[.gz] / gene2refseq[.gz] not found in " + dir);
+                }
+                if (refSeqGene == null) {
+                    if (needRefSeqGene) {
+                        throw new IOException("NG_ records requested but gene_RefSeqGene[.gz] (or LRG_RefSeqGene[.gz]) not found in "
+                                + dir + " (use --types NM for organisms without RefSeqGene data)");
+                    }
+                    System.err.println("Warning: no gene_RefSeqGene[.gz] / LRG_RefSeqGene[.gz] in " + dir
+                            + "; indexing TaxID " + taxId + " without NG_ records.");
+                }
+                System.out.println("Importing TaxID " + taxId + " from " + geneInfo.getFileName()
+                        + (refSeqGene != null
+                                ? ", " + gene2refseq.getFileName() + " and " + refSeqGene.getFileName()
+                                : " and " + gene2refseq.getFileName())
+                        + " (one-time)...");
+                GeneIndex imported = importNcbi(geneInfo, gene2refseq, refSeqGene, taxId);
+                imported.write(index, header(taxId, refSeqGene != null));
+                return imported;
+            }
+            return read(index, taxId);
+        }
+
+        Optional<String> findGeneId(String symbol) {
+            String key = symbol.toUpperCase(Locale.ROOT);
+            String id = symbols.get(key);
+            if (id == null) id = synonyms.get(key);
+            return Optional.ofNullable(id);
+        }
+
+        // All NM_/NG_ accession.version strings linked to the GeneID (callers filter by prefix, as for ELink).
+        List<String> accessionVersions(String geneId) {
+            return accessions.getOrDefault(geneId, List.of());
+        }
+
+        int size() {
+            return symbols.size();
+        }
+
+        private static GeneIndex importNcbi(Path geneInfo, Path gene2refseq, Path refSeqGene, String taxId) throws IOException {
+            GeneIndex gi = new GeneIndex();
+            String prefix = taxId + "\t"; // cheap pre-filter: both files start each row with tax_id
+
+            // gene_info: #tax_id GeneID Symbol LocusTag Synonyms ...
+            try (BufferedReader r = openText(geneInfo)) {
+                for (String line; (line = r.readLine()) != null; ) {
+                    if (!line.startsWith(prefix)) continue;
+                    String[] f = line.split("\t", 6);
+                    if (f.length < 5) continue;
+                    gi.symbols.putIfAbsent(f[2].toUpperCase(Locale.ROOT), f[1]);
+                    if (!f[4].equals("-")) {
+                        for (String syn : f[4].split("\\|")) {
+                            if (!syn.isBlank()) gi.synonyms.putIfAbsent(syn.strip().toUpperCase(Locale.ROOT), f[1]);
+                        }
+                    }
+                }
+            }
+
+            // gene2refseq: #tax_id GeneID status RNA_acc.ver ... (one row per RNA/genomic placement). Only NM_ is
+            // taken from here: its genomic column lists every gene annotated on an NG_ (large IGH/HLA loci, neighbours
+            // on a RefSeqGene), which is broader than ELink's gene_nuccore_refseqgene.
+            Map<String, LinkedHashSet<String>> accs = new HashMap<>();
+            try (BufferedReader r = openText(gene2refseq)) {
+                for (String line; (line = r.readLine()) != null; ) {
+                    if (!line.startsWith(prefix)) continue;
+                    String[] f = line.split("\t", 5);
+                    if (f.length < 4) continue;
+                    if (f[3].startsWith("NM_")) accs.computeIfAbsent(f[1], k -> new LinkedHashSet<>()).add(f[3]);
+                }
+            }
+
+            // gene_RefSeqGene / LRG_RefSeqGene: #tax_id GeneID Symbol RSG ... -- each gene's own RefSeqGene NG_.
+            // De-duplicate per gene (one row per transcript), keeping file order. Optional (see open()).
+            if (refSeqGene != null) {
+                try (BufferedReader r = openText(refSeqGene)) {
+                    for (String line; (line = r.readLine()) != null; ) {
+                        if (!line.startsWith(prefix)) continue;
+                        String[] f = line.split("\t", 5);
+                        if (f.length < 4) continue;
+                        if (f[3].startsWith("NG_")) accs.computeIfAbsent(f[1], k -> new LinkedHashSet<>()).add(f[3]);
+                    }
+                }
+            }
+            accs.forEach((id, set) -> gi.accessions.put(id, List.copyOf(set)));
+            return gi;
+        }
+
+        // Index format: header line, then "S|Y<TAB>KEY<TAB>GeneID" (symbol/synonym) and "A<TAB>GeneID<TAB>acc.ver" rows.
+        private void write(Path index, String header) throws IOException {
+            Path tmp = index.resolveSibling(index.getFileName() + ".part");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                w.write(header);
+                w.newLine();
+                for (var e : symbols.entrySet()) writeRow(w, "S", e.getKey(), e.getValue());
+                for (var e : synonyms.entrySet()) writeRow(w, "Y", e.getKey(), e.getValue());
+                for (var e : accessions.entrySet()) {
+                    for (String acc : e.getValue()) writeRow(w, "A", e.getKey(), acc);
+                }
+            }
+            try {
+                Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private static void writeRow(BufferedWriter w, String kind, String a, String b) throws IOException {
+            w.write(kind);
+            w.write('\t');
+            w.write(a);
+            w.write('\t');
+            w.write(b);
+            w.newLine();
+        }
+
+        private static GeneIndex read(Path index, String taxId) throws IOException {
+            GeneIndex gi = new GeneIndex();
+            Map<String, List<String>> accs = new HashMap<>();
+            try (BufferedReader r = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+                String header = r.readLine();
+                if (!header(taxId, true).equals(header) && !header(taxId, false).equals(header)) {
+                    throw new IOException("not a gene index for TaxID " + taxId + ": " + index);
+                }
+                for (String line; (line = r.readLine()) != null; ) {
+                    String[] f = line.split("\t", 3);
+                    if (f.length < 3) continue;
+                    switch (f[0]) {
+                        case "S" -> gi.symbols.put(f[1], f[2]);
+                        case "Y" -> gi.synonyms.put(f[1], f[2]);
+                        case "A" -> accs.computeIfAbsent(f[1], k -> new ArrayList<>()).add(f[2]);
+                        default -> { } // unknown row kinds are ignored
+                    }
+                }
+            }
+            gi.accessions.putAll(accs);
+            return gi;
+        }
+
+        // Records whether NG_ rows (from the RefSeqGene mapping) are in the index.
+        private static String header(String taxId, boolean withRefSeqGene) {
+            return HEADER + taxId + " refseqgene=" + (withRefSeqGene ? "yes" : "no");
+        }
+
+        private static Path findSource(Path dir, String name) {
+            for (String candidate : List.of(name, name + ".gz")) {
+                Path p = dir.resolve(candidate);
+                if (Files.isRegularFile(p)) return p;
+            }
+            return null;
+        }
+
+        private static boolean isNewer(Path a, Path b) throws IOException {
+            return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b)) > 0;
+        }
+
+        private static BufferedReader openText(Path p) throws IOException {
+            InputStream in = Files.newInputStream(p);
+            if (p.getFileName().toString().endsWith(".gz")) {
+                in = new GZIPInputStream(in, 1 << 16);
+            }
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        }
+    }
+
     // ---------- Step 3: EFetch GenBank (gbwithparts) + (optional) range ----------
     public void efetchGenbank(String accver, Path outFile, Integer seqStart, Integer seqStop) throws IOException, InterruptedException {
         // GenBank flat file: rettype=gb or gbwithparts; we use gbwithparts
@@ -546,81 +971,206 @@ public class NcbiRefSeqGenbankDownloader {
                 .GET()
                 .build();
 
-        HttpResponse<byte[]> resp = sendWithRetry(req, HttpResponse.BodyHandlers.ofByteArray(), "EFetch " + accver);
-        if (resp.statusCode() != 200) {
-            throw new IOException("EFetch HTTP " + resp.statusCode() + " for " + accver + bodySnippet(resp.body()));
+        // Committed in finally, so records that fail or exhaust their attempts show up in a recording too.
+        var ev = new EFetchEvent();
+        ev.begin();
+        try {
+            // Stream the body to a sibling temp file then move into place, so a previously good file is never
+            // clobbered by a bad/partial download. A body that breaks off mid-transfer or validates as truncated
+            // (see GenBankValidator) is re-requested; other validation failures are reported at once.
+            Path tmp = outFile.resolveSibling(outFile.getFileName() + ".part");
+            final int maxAttempts = 4;
+            long size;
+            for (int attempt = 1; ; attempt++) {
+                ev.attempts = attempt;
+                GenBankValidator validator = new GenBankValidator(accver, seqStart, seqStop);
+                IncompleteRecordException retry;
+                // Reserve the copy buffer before opening the connection: a worker stalled on the budget holds
+                // no open response. Given back during every back-off sleep, including sendWithRetry's own
+                // 429/5xx/IOException retries.
+                budget.acquire();
+                try {
+                    HttpResponse<InputStream> resp = sendWithRetry(req, HttpResponse.BodyHandlers.ofInputStream(), "EFetch " + accver, budget);
+                    try (InputStream in = resp.body()) {
+                        if (resp.statusCode() != 200) {
+                            throw new IOException("EFetch HTTP " + resp.statusCode() + " for " + accver + bodySnippet(in.readNBytes(300)));
+                        }
+                        size = streamRecord(in, tmp, validator);
+                    }
+                    break;
+                } catch (IncompleteRecordException e) {
+                    Files.deleteIfExists(tmp);
+                    if (attempt == maxAttempts) throw e;
+                    retry = e;
+                } catch (IOException | RuntimeException | InterruptedException e) {
+                    Files.deleteIfExists(tmp);
+                    throw e;
+                } finally {
+                    budget.release();
+                    ev.validationTime += validator.nanos;
+                }
+                System.err.println("  EFetch " + accver + ": " + retry.getMessage()
+                        + " (attempt " + attempt + "/" + maxAttempts + "), retrying...");
+                backoff(attempt, -1L);
+            }
+
+            long moveStart = System.nanoTime();
+            try {
+                Files.move(tmp, outFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, outFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            ev.moveTime = System.nanoTime() - moveStart;
+            ev.bytes = size;
+            ev.success = true;
+            System.out.println("  saved " + outFile.getFileName() + " (" + size + " bytes)");
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            ev.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            throw e;
+        } finally {
+            if (ev.shouldCommit()) {
+                ev.accession = accver;
+                ev.commit();
+            }
         }
+    }
 
-        byte[] body = resp.body();
-        // EFetch can return HTTP 200 with a plain-text error or an empty body (e.g. a withdrawn accession
-        // or an out-of-range seq_start/seq_stop). Validate before committing anything to disk.
-        if (!looksLikeGenBank(body)) {
-            throw new IOException("EFetch for " + accver + " did not return a GenBank record." + bodySnippet(body));
+    // The response body broke off or the record was cut short; worth fetching again.
+    static final class IncompleteRecordException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        IncompleteRecordException(String message, Throwable cause) {
+            super(message, cause);
         }
+    }
 
-        // Write to a sibling temp file then move into place, so a previously good file is never
-        // clobbered by a bad/partial download.
-        Path tmp = outFile.resolveSibling(outFile.getFileName() + ".part");
-        Files.write(tmp, body, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
-        try {
-            Files.move(tmp, outFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } catch (AtomicMoveNotSupportedException e) {
-            Files.move(tmp, outFile, StandardCopyOption.REPLACE_EXISTING);
+    // Copies one EFetch body to the .part file through a single chunk buffer (reserved from the budget by the
+    // caller before the request was sent), so memory per transfer stays fixed no matter how large the NG_
+    // record is. Each chunk is also fed to the validator, so the record is checked as it is written.
+    // Returns the number of bytes written.
+    private long streamRecord(InputStream in, Path tmp, GenBankValidator validator) throws IOException {
+        String accver = validator.accession;
+        try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            byte[] buf = new byte[budget.chunkBytes()];
+            long total = 0;
+            while (true) {
+                int n;
+                try {
+                    n = in.readNBytes(buf, 0, buf.length);
+                } catch (IOException e) {
+                    throw new IncompleteRecordException("body broke off after " + total + " bytes ("
+                            + e.getClass().getSimpleName() + ")", e);
+                }
+                // EFetch can return HTTP 200 with a plain-text error or an empty body (e.g. a withdrawn accession
+                // or an out-of-range seq_start/seq_stop). Check the head before committing anything to disk.
+                if (total == 0 && !looksLikeGenBank(buf, n)) {
+                    throw new IOException("EFetch for " + accver + " did not return a GenBank record."
+                            + bodySnippet(Arrays.copyOf(buf, n)));
+                }
+                out.write(buf, 0, n);
+                validator.update(buf, 0, n);
+                total += n;
+                if (n < buf.length) break; // readNBytes only returns short at end of stream
+            }
+            validator.finish();
+            return total;
         }
-        System.out.println("  saved " + outFile.getFileName() + " (" + body.length + " bytes)");
     }
 
     // ---------- helpers ----------
 
     // Paces ALL E-utilities requests to stay under NCBI's rate cap (3 req/s without a key, 10 req/s with one),
     // measuring real elapsed time so esearch/elink/efetch all share one budget.
-    private synchronized void throttle() {
-        long minIntervalMs = (apiKey == null || apiKey.isBlank()) ? 350 : 110;
-        if (lastRequestNanos != 0L) {
-            long elapsedMs = (System.nanoTime() - lastRequestNanos) / 1_000_000L;
-            long waitMs = minIntervalMs - elapsedMs;
-            if (waitMs > 0) {
-                try {
-                    Thread.sleep(waitMs);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+    private void throttle() {
+        // Begun before taking the lock, so the event's duration includes time spent queued behind other
+        // workers, which with --workers > 1 is usually longer than this thread's own sleep.
+        var ev = new ThrottleEvent();
+        ev.begin();
+        long waitMs = 0L;
+        synchronized (this) {
+            long minIntervalMs = (apiKey == null || apiKey.isBlank()) ? 350 : 110;
+            if (lastRequestNanos != 0L) {
+                long elapsedMs = (System.nanoTime() - lastRequestNanos) / 1_000_000L;
+                waitMs = Math.max(0L, minIntervalMs - elapsedMs);
+                if (waitMs > 0) {
+                    try {
+                        Thread.sleep(waitMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
                 }
             }
+            lastRequestNanos = System.nanoTime();
+        }
+        if (ev.shouldCommit()) {
+            ev.waitMillis = waitMs;
+            ev.commit();
         }
-        lastRequestNanos = System.nanoTime();
     }
 
     // Sends a request with rate limiting and bounded retry/backoff on transient failures
     // (IOException/timeout and HTTP 429/5xx). Honors Retry-After when present.
     private <T> HttpResponse<T> sendWithRetry(HttpRequest req, HttpResponse.BodyHandler<T> handler, String what)
             throws IOException, InterruptedException {
+        return sendWithRetry(req, handler, what, null);
+    }
+
+    // As above, for a caller that already holds its download budget: the budget is given back for the
+    // duration of each back-off sleep (which may be a long Retry-After) and re-taken before the next attempt.
+    private <T> HttpResponse<T> sendWithRetry(HttpRequest req, HttpResponse.BodyHandler<T> handler, String what, ByteBudget held)
+            throws IOException, InterruptedException {
         final int maxAttempts = 4;
         IOException lastIo = null;
         for (int attempt = 1; attempt <= maxAttempts; attempt++) {
             throttle();
+            var ev = new HttpRequestEvent();
+            ev.begin();
             HttpResponse<T> resp;
             try {
                 resp = http.send(req, handler);
             } catch (IOException e) { // includes HttpTimeoutException / HttpConnectTimeoutException
+                commitRequestEvent(ev, req, what, attempt, -1, -1L);
                 lastIo = e;
                 if (attempt == maxAttempts) break;
                 System.err.println("  " + what + ": " + e.getClass().getSimpleName()
                         + " (attempt " + attempt + "/" + maxAttempts + "), retrying...");
-                backoff(attempt, -1L);
+                backoff(attempt, -1L, held);
                 continue;
             }
             int sc = resp.statusCode();
+            if (ev.shouldCommit()) {
+                // Buffered bodies report their real size; streamed ones (EFetch) the Content-Length, if any.
+                long bytes = (resp.body() instanceof byte[] b) ? b.length
+                        : resp.headers().firstValueAsLong("Content-Length").orElse(-1L);
+                commitRequestEvent(ev, req, what, attempt, sc, bytes);
+            }
             if (sc == 200 || !isTransient(sc) || attempt == maxAttempts) {
                 return resp; // success, or a non-transient/last-attempt status for the caller to handle
             }
             System.err.println("  " + what + ": HTTP " + sc
                     + " (attempt " + attempt + "/" + maxAttempts + "), retrying...");
-            backoff(attempt, parseRetryAfterMs(resp));
+            if (resp.body() instanceof AutoCloseable c) {
+                try {
+                    c.close(); // release the connection of a discarded streaming body
+                } catch (Exception ignored) {
+                }
+            }
+            backoff(attempt, parseRetryAfterMs(resp), held);
         }
         throw (lastIo != null) ? lastIo
                 : new IOException("Request failed after " + maxAttempts + " attempts: " + what);
     }
 
+    private static void commitRequestEvent(HttpRequestEvent ev, HttpRequest req, String what, int attempt, int status, long bytes) {
+        if (!ev.shouldCommit()) return;
+        ev.endpoint = req.uri().getPath();
+        ev.what = what;
+        ev.attempt = attempt;
+        ev.status = status;
+        ev.bytes = bytes;
+        ev.commit();
+    }
+
     private static boolean isTransient(int statusCode) {
         return statusCode == 429 || statusCode == 500 || statusCode == 502 || statusCode == 503 || statusCode == 504;
     }
@@ -635,21 +1185,154 @@ public class NcbiRefSeqGenbankDownloader {
         }).orElse(-1L);
     }
 
+    private static void backoff(int attempt, long retryAfterMs, ByteBudget held) throws InterruptedException {
+        if (held == null) {
+            backoff(attempt, retryAfterMs);
+            return;
+        }
+        held.release();
+        try {
+            backoff(attempt, retryAfterMs);
+        } finally {
+            held.acquireUninterruptibly(); // the caller still releases it in its own finally
+        }
+    }
+
     private static void backoff(int attempt, long retryAfterMs) throws InterruptedException {
         long waitMs = (retryAfterMs > 0) ? retryAfterMs : (long) (500L * Math.pow(2, attempt - 1));
         waitMs = Math.min(Math.max(waitMs, 0L), 8000L);
         Thread.sleep(waitMs);
     }
 
-    private static boolean looksLikeGenBank(byte[] body) {
-        if (body == null || body.length == 0) return false;
+    // Incremental structural check of one GenBank flat-file record, fed chunk by chunk as it is written.
+    // Verifies that the LOCUS length matches the ORIGIN base count, that VERSION is the requested accession,
+    // that a requested seq_start/seq_stop range produced that many bases, and that the record ends with "//".
+    static final class GenBankValidator {
+        private static final Pattern LOCUS_LENGTH = Pattern.compile("\\s(\\d+)\\s+bp\\b");
+
+        final String accession;
+        private final Integer seqStart;
+        private final Integer seqStop;
+
+        private final byte[] line = new byte[256]; // head of the current line; long lines are only counted
+        private int lineLen = 0;
+        private boolean inOrigin = false;
+        private boolean sawEnd = false;
+        private boolean trailingData = false;
+        private long locusLength = -1L;
+        private String version = null;
+        private long bases = 0L;
+        long nanos = 0L; // time spent validating, reported in EFetchEvent
+
+        GenBankValidator(String accession, Integer seqStart, Integer seqStop) {
+            this.accession = accession;
+            this.seqStart = seqStart;
+            this.seqStop = seqStop;
+        }
+
+        void update(byte[] b, int off, int len) {
+            long t0 = System.nanoTime();
+            for (int i = off; i < off + len; i++) {
+                byte c = b[i];
+                if (c == '\n') {
+                    endLine();
+                    continue;
+                }
+                // Sequence lines are "   <offset> acgtacgtac acgt..."; only the letters are bases.
+                if (inOrigin && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) bases++;
+                if (lineLen < line.length) line[lineLen++] = c;
+            }
+            nanos += System.nanoTime() - t0;
+        }
+
+        // Throws IncompleteRecordException (worth re-fetching) only for truncation: a short ORIGIN or a missing
+        // "//". A VERSION or range mismatch would come back the same on every attempt, so it is a plain
+        // IOException, as is any other malformed-but-complete record.
+        void finish() throws IOException {
+            long t0 = System.nanoTime();
+            if (lineLen > 0) endLine();
+            List<String> mismatches = new ArrayList<>();
+            if (version != null && !versionMatches()) {
+                mismatches.add("VERSION " + version + " does not match " + accession);
+            }
+            if (seqStart != null && seqStop != null && locusLength >= 0 && locusLength != (long) seqStop - seqStart + 1) {
+                mismatches.add("range " + seqStart + ".." + seqStop + " gave " + locusLength + " bp");
+            }
+            List<String> problems = new ArrayList<>();
+            if (locusLength < 0) problems.add("no LOCUS length");
+            if (version == null) problems.add("no VERSION line");
+            if (locusLength >= 0 && bases != locusLength) {
+                problems.add("LOCUS says " + locusLength + " bp but ORIGIN has " + bases);
+            }
+            if (!sawEnd) problems.add("missing terminating //");
+            if (trailingData) problems.add("unexpected data after //");
+            boolean truncated = !sawEnd || (locusLength >= 0 && bases < locusLength);
+            nanos += System.nanoTime() - t0;
+
+            if (!mismatches.isEmpty()) {
+                throw new IOException("wrong record: " + String.join("; ", mismatches));
+            }
+            if (truncated) {
+                throw new IncompleteRecordException("truncated record: " + String.join("; ", problems), null);
+            }
+            if (!problems.isEmpty()) {
+                throw new IOException("invalid record: " + String.join("; ", problems));
+            }
+        }
+
+        private void endLine() {
+            int n = lineLen;
+            if (n > 0 && line[n - 1] == '\r') n--;
+            lineLen = 0;
+            if (sawEnd) {
+                for (int i = 0; i < n; i++) {
+                    if (line[i] != ' ' && line[i] != '\t') trailingData = true;
+                }
+                return;
+            }
+            if (n >= 2 && line[0] == '/' && line[1] == '/') {
+                inOrigin = false;
+                sawEnd = true;
+                return;
+            }
+            if (inOrigin) return;
+            // Header keywords start in column 1; only a handful are of interest here.
+            if (startsWith(line, n, "LOCUS")) {
+                Matcher m = LOCUS_LENGTH.matcher(new String(line, 0, n, StandardCharsets.US_ASCII));
+                if (m.find() && locusLength < 0) locusLength = Long.parseLong(m.group(1));
+            } else if (startsWith(line, n, "VERSION")) {
+                String[] f = new String(line, 0, n, StandardCharsets.US_ASCII).trim().split("\\s+");
+                if (f.length > 1) version = f[1];
+            } else if (startsWith(line, n, "ORIGIN")) {
+                inOrigin = true;
+            }
+        }
+
+        // A requested accession without ".version" matches any version of that accession.
+        private boolean versionMatches() {
+            String want = accession.toUpperCase(Locale.ROOT);
+            String got = version.toUpperCase(Locale.ROOT);
+            return want.contains(".") ? got.equals(want) : got.startsWith(want + ".");
+        }
+
+        private static boolean startsWith(byte[] b, int n, String keyword) {
+            if (n < keyword.length()) return false;
+            for (int i = 0; i < keyword.length(); i++) {
+                if (b[i] != keyword.charAt(i)) return false;
+            }
+            return n == keyword.length() || b[keyword.length()] == ' ' || b[keyword.length()] == '\t';
+        }
+    }
+
+    private static boolean looksLikeGenBank(byte[] body, int length) {
+        if (body == null || length == 0) return false;
         int i = 0;
-        while (i < body.length) {
+        while (i < length) {
             byte b = body[i];
             if (b == ' ' || b == '\n' || b == '\r' || b == '\t') i++;
             else break;
         }
-        int n = Math.min(5, body.length - i);
+        int n = Math.min(5, length - i);
         if (n < 5) return false;
         return new String(body, i, n, StandardCharsets.US_ASCII).equals("LOCUS");
     }
@@ -730,11 +1413,85 @@ public class NcbiRefSeqGenbankDownloader {
         // Disable any DTD/ENTITY resolution attempts
         builder.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader("")));
 
+        var ev = new XmlParseEvent();
+        ev.begin();
         try (var in = new ByteArrayInputStream(resp.body())) {
             return builder.parse(in);
+        } finally {
+            if (ev.shouldCommit()) {
+                ev.endpoint = uri.getPath();
+                ev.bytes = resp.body().length;
+                ev.commit();
+            }
         }
     }
 
+    // ---------- JFR events (recorded only with --jfr; otherwise begin/shouldCommit are near no-ops) ----------
+
+    @Name("genbanktools.HttpRequest")
+    @Label("E-utilities Request")
+    @Category("GenBank Tools")
+    @StackTrace(false)
+    static final class HttpRequestEvent extends Event {
+        @Label("Endpoint")
+        String endpoint;
+        @Label("Request")
+        String what;
+        @Label("Attempt")
+        int attempt;
+        @Label("HTTP Status") // -1 when the request failed with an IOException
+        int status;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("genbanktools.Throttle")
+    @Label("Rate-Limit Wait")
+    @Category("GenBank Tools")
+    @StackTrace(false)
+    static final class ThrottleEvent extends Event {
+        @Label("Wait Time") // own pacing sleep; the event duration also covers waiting for the lock
+        @Timespan(Timespan.MILLISECONDS)
+        long waitMillis;
+    }
+
+    @Name("genbanktools.EFetch")
+    @Label("EFetch Record")
+    @Category("GenBank Tools")
+    @StackTrace(false)
+    static final class EFetchEvent extends Event {
+        @Label("Accession")
+        String accession;
+        @Label("Bytes") // size of the saved record; 0 when the fetch failed
+        @DataAmount
+        long bytes;
+        @Label("Attempts")
+        int attempts;
+        @Label("Success")
+        boolean success;
+        @Label("Error") // null on success
+        String error;
+        @Label("Validation Time") // summed over all attempts
+        @Timespan
+        long validationTime;
+        @Label("Move Time")
+        @Timespan
+        long moveTime;
+    }
+
+    @Name("genbanktools.XmlParse")
+    @Label("XML Parse")
+    @Category("GenBank Tools")
+    @StackTrace(false)
+    static final class XmlParseEvent extends Event {
+        @Label("Endpoint")
+        String endpoint;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
     private static List<String> xpathText(Document doc, String expr) throws Exception {
         var xp = XPathFactory.newInstance().newXPath();
         NodeList nl = (NodeList) xp.evaluate(expr, doc, XPathConstants.NODESET);